@@ -0,0 +1,404 @@
+package org.fredoseep;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 物品图标缓存：从客户端 jar 或资源包 zip 中按需读取贴图。
+ * <p>
+ * 所有图标都打包在一张固定大小的图集 (atlas) 里，槽位按 LRU 复用，所以内存占用是固定的；
+ * 解码在后台线程进行，只有表格里真正被渲染 (可见) 的行才会发起请求。
+ * 图集和索引会写到磁盘，下次启动时直接加载，不用重新解码。
+ */
+public class ItemIconCache {
+    public static final int ICON_SIZE = 16;
+    private static final int ATLAS_COLS = 64;
+    private static final int ATLAS_ROWS = 32;
+    private static final int CAPACITY = ATLAS_COLS * ATLAS_ROWS;
+    // 快速滚动时只保留最新的请求，旧请求 (早已滚出屏幕的行) 直接丢弃
+    private static final int MAX_PENDING = 128;
+    private static final long SAVE_IDLE_MS = 2000;
+
+    // 索引文件格式版本：规则变化后旧索引 (包括 missing 列表) 作废
+    private static final String INDEX_VERSION = "2";
+
+    // 模型 JSON 很简单，和 ItemDictionary 一样用正则提取即可
+    private static final Pattern MODEL_REF = Pattern.compile("\"model\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern PARENT = Pattern.compile("\"parent\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern TEXTURES = Pattern.compile("\"textures\"\\s*:\\s*\\{([^}]*)\\}");
+    private static final Pattern TEXTURE_ENTRY = Pattern.compile("\"([^\"]+)\"\\s*:\\s*\"([^\"]+)\"");
+    // 方块模型没有 layer0，按顺序挑一个最能代表物品的面
+    private static final String[] TEXTURE_KEYS = {"layer0", "all", "side", "front", "top", "texture", "wall", "pane", "end", "cross", "particle"};
+
+    // 模型解析失败时 (例如只含贴图的资源包) 按物品 ID 猜文件名
+    private static final String[] TEXTURE_CANDIDATES = {
+            "assets/minecraft/textures/item/%s.png",
+            "assets/minecraft/textures/block/%s.png",
+            "assets/minecraft/textures/block/%s_front.png",
+            "assets/minecraft/textures/block/%s_side.png",
+            "assets/minecraft/textures/block/%s_top.png"
+    };
+
+    private final Path atlasFile;
+    private final Path indexFile;
+    private final BufferedImage atlas = new BufferedImage(ATLAS_COLS * ICON_SIZE, ATLAS_ROWS * ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
+    private final AtlasIcon[] icons = new AtlasIcon[CAPACITY];
+
+    // itemId -> 槽位，accessOrder=true 即 LRU 顺序 (以下集合都由 this 锁保护)
+    private final LinkedHashMap<String, Integer> slots = new LinkedHashMap<>(256, 0.75f, true);
+    private final Set<String> missing = new HashSet<>();
+    private final Set<String> pending = new HashSet<>();
+    private final LinkedBlockingDeque<String> requests = new LinkedBlockingDeque<>();
+    private int nextFreeSlot = 0;
+    private boolean dirty = false;
+
+    private volatile ZipFile source;
+    private volatile Runnable onIconLoaded;
+
+    public ItemIconCache(Path cacheDir) {
+        this.atlasFile = cacheDir.resolve("icon_atlas.png");
+        this.indexFile = cacheDir.resolve("icon_atlas.txt");
+        for (int i = 0; i < CAPACITY; i++) icons[i] = new AtlasIcon(i);
+
+        Thread loader = new Thread(this::loaderLoop, "icon-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public void setOnIconLoaded(Runnable callback) { this.onIconLoaded = callback; }
+
+    /**
+     * 启动时调用：重新打开上次的来源；来源文件没有变化时直接恢复磁盘上的图集，变化了就重新解码。
+     */
+    public void restore() {
+        if (!Files.exists(indexFile)) return;
+        try {
+            List<String> lines = Files.readAllLines(indexFile);
+            if (lines.isEmpty()) return;
+            String[] header = lines.get(0).split("\\|");
+            if (header.length != 4 || !header[3].equals(INDEX_VERSION)) return;
+            File sourceFile = new File(header[0]);
+            if (!sourceFile.exists()) return;
+            ZipFile zip = open(sourceFile);
+            if (zip == null) return;
+
+            // 来源文件被改过 (例如编辑了资源包)：照样打开，只是不用旧图集，图标会重新解码
+            BufferedImage saved = null;
+            if (Arrays.equals(header, describe(sourceFile))) {
+                saved = readAtlas();
+            } else {
+                System.out.println(">>> Icon source changed since last run, decoding icons again");
+            }
+            if (saved == null) {
+                replaceSource(zip);
+                return;
+            }
+            ZipFile old;
+            synchronized (this) {
+                // 和恢复槽位放在同一把锁里，加载线程不会在恢复到一半时写入图集
+                old = source;
+                source = zip;
+                Graphics2D g = atlas.createGraphics();
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(saved, 0, 0, null);
+                g.dispose();
+                // 索引按 LRU 从旧到新保存，按顺序放回即可还原访问顺序
+                for (String line : lines.subList(1, lines.size())) {
+                    if (line.startsWith("!")) {
+                        missing.add(line.substring(1));
+                        continue;
+                    }
+                    String[] parts = line.split("\\|");
+                    if (parts.length != 2) continue;
+                    int slot = Integer.parseInt(parts[1]);
+                    if (slot >= 0 && slot < CAPACITY) {
+                        slots.put(parts[0], slot);
+                        nextFreeSlot = Math.max(nextFreeSlot, slot + 1);
+                    }
+                }
+            }
+            close(old);
+            System.out.println(">>> Restored icon atlas: " + slots.size() + " icons");
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 切换图标来源 (客户端 jar 或资源包 zip)，会清空当前缓存。
+     */
+    public void setSource(File file) {
+        ZipFile zip = open(file);
+        ZipFile old;
+        synchronized (this) {
+            // 清空和切换来源必须在同一把锁里：否则加载线程可能把旧来源的图标存进刚清空的缓存
+            slots.clear();
+            missing.clear();
+            pending.clear();
+            requests.clear();
+            nextFreeSlot = 0;
+            dirty = true;
+            old = source;
+            source = zip;
+        }
+        close(old);
+    }
+
+    private void replaceSource(ZipFile zip) {
+        ZipFile old;
+        synchronized (this) {
+            old = source;
+            source = zip;
+        }
+        close(old);
+    }
+
+    private static ZipFile open(File file) {
+        try {
+            return new ZipFile(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void close(ZipFile zip) {
+        if (zip != null) {
+            try { zip.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private BufferedImage readAtlas() {
+        if (!Files.exists(atlasFile)) return null;
+        try {
+            BufferedImage saved = ImageIO.read(atlasFile.toFile());
+            if (saved == null || saved.getWidth() != atlas.getWidth() || saved.getHeight() != atlas.getHeight()) return null;
+            return saved;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 只在 EDT 的渲染器里调用：命中直接返回，未命中则排队后台解码并返回 null。
+     */
+    public synchronized Icon getIcon(String itemId) {
+        Integer slot = slots.get(itemId);
+        if (slot != null) return icons[slot];
+        if (source == null || missing.contains(itemId) || !pending.add(itemId)) return null;
+
+        requests.offerLast(itemId);
+        if (requests.size() > MAX_PENDING) {
+            String dropped = requests.pollFirst();
+            if (dropped != null) pending.remove(dropped);
+        }
+        return null;
+    }
+
+    public synchronized int getCachedCount() { return slots.size(); }
+
+    private void loaderLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // 后进先出：优先加载最近一次渲染请求的行
+                String itemId = requests.pollLast(SAVE_IDLE_MS, TimeUnit.MILLISECONDS);
+                if (itemId == null) {
+                    // 空闲一段时间后再写盘；滚动时队列会频繁清空，每次都编码整张图集会拖慢解码
+                    saveIfDirty();
+                    continue;
+                }
+                ZipFile zip = source;
+                if (zip != null) {
+                    BufferedImage image = decode(zip, itemId);
+                    synchronized (this) {
+                        // 解码期间来源被切换了，结果作废
+                        if (zip != source) continue;
+                        pending.remove(itemId);
+                        if (image == null) missing.add(itemId);
+                        else store(itemId, image);
+                        dirty = true;
+                    }
+                    Runnable callback = onIconLoaded;
+                    if (image != null && callback != null) SwingUtilities.invokeLater(callback);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private BufferedImage decode(ZipFile zip, String itemId) {
+        String name = itemId.substring(itemId.indexOf(':') + 1);
+        Set<String> candidates = new LinkedHashSet<>(resolveModelTextures(zip, name));
+        for (String pattern : TEXTURE_CANDIDATES) candidates.add(String.format(pattern, name));
+
+        for (String path : candidates) {
+            try {
+                ZipEntry entry = zip.getEntry(path);
+                if (entry == null) continue;
+                BufferedImage raw;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    raw = ImageIO.read(in);
+                }
+                if (raw == null) continue;
+                // 动画贴图是竖向排列的多帧，只取第一帧；高清资源包统一缩放到 16x16
+                int frame = Math.min(raw.getWidth(), raw.getHeight());
+                BufferedImage scaled = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g = scaled.createGraphics();
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                g.drawImage(raw, 0, 0, ICON_SIZE, ICON_SIZE, 0, 0, frame, frame, null);
+                g.dispose();
+                return scaled;
+            } catch (IOException | IllegalStateException e) {
+                // 来源文件已被切换或损坏，跳过
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 通过物品模型找贴图：items/&lt;id&gt;.json (1.21.4+) 或 models/item/&lt;id&gt;.json，
+     * 沿 parent 链收集 textures，再把 "#side" 这类引用解析成真正的贴图路径。
+     * 楼梯、台阶、墙、栅栏等物品没有同名贴图，只能这样找到。
+     */
+    private List<String> resolveModelTextures(ZipFile zip, String name) {
+        String model = "minecraft:item/" + name;
+        String definition = readText(zip, "assets/minecraft/items/" + name + ".json");
+        if (definition != null) {
+            Matcher m = MODEL_REF.matcher(definition);
+            if (m.find()) model = m.group(1);
+        }
+
+        // 子模型的定义优先，所以只在 key 不存在时才放入
+        Map<String, String> textures = new HashMap<>();
+        for (int depth = 0; model != null && depth < 16 && !model.startsWith("builtin/"); depth++) {
+            String json = readText(zip, assetPath(model, "models", ".json"));
+            if (json == null) break;
+            Matcher t = TEXTURES.matcher(json);
+            if (t.find()) {
+                Matcher e = TEXTURE_ENTRY.matcher(t.group(1));
+                while (e.find()) textures.putIfAbsent(e.group(1), e.group(2));
+            }
+            Matcher p = PARENT.matcher(json);
+            model = p.find() ? p.group(1) : null;
+        }
+
+        List<String> paths = new ArrayList<>();
+        for (String key : TEXTURE_KEYS) {
+            String ref = textures.get(key);
+            for (int i = 0; ref != null && ref.startsWith("#") && i < 8; i++) {
+                ref = textures.get(ref.substring(1));
+            }
+            if (ref != null && !ref.startsWith("#")) paths.add(assetPath(ref, "textures", ".png"));
+        }
+        return paths;
+    }
+
+    // "minecraft:block/stone" 或 "block/stone" -> assets/minecraft/<kind>/block/stone<ext>
+    private static String assetPath(String ref, String kind, String ext) {
+        int colon = ref.indexOf(':');
+        String namespace = colon >= 0 ? ref.substring(0, colon) : "minecraft";
+        return "assets/" + namespace + "/" + kind + "/" + ref.substring(colon + 1) + ext;
+    }
+
+    private static String readText(ZipFile zip, String path) {
+        try {
+            ZipEntry entry = zip.getEntry(path);
+            if (entry == null) return null;
+            try (InputStream in = zip.getInputStream(entry)) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    // 调用方持有 this 锁
+    private void store(String itemId, BufferedImage image) {
+        int slot;
+        if (nextFreeSlot < CAPACITY) {
+            slot = nextFreeSlot++;
+        } else {
+            // 图集已满：淘汰最久未使用的图标，复用它的槽位
+            Iterator<Map.Entry<String, Integer>> eldest = slots.entrySet().iterator();
+            slot = eldest.next().getValue();
+            eldest.remove();
+        }
+        Graphics2D g = atlas.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, (slot % ATLAS_COLS) * ICON_SIZE, (slot / ATLAS_COLS) * ICON_SIZE, null);
+        g.dispose();
+        slots.put(itemId, slot);
+    }
+
+    private void saveIfDirty() {
+        List<String> lines = new ArrayList<>();
+        BufferedImage copy;
+        synchronized (this) {
+            ZipFile zip = source;
+            if (!dirty || zip == null) return;
+            dirty = false;
+            lines.add(String.join("|", describe(new File(zip.getName()))));
+            for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+                lines.add(entry.getKey() + "|" + entry.getValue());
+            }
+            for (String id : missing) lines.add("!" + id);
+            copy = new BufferedImage(atlas.getWidth(), atlas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            copy.setData(atlas.getRaster());
+        }
+        try {
+            Files.createDirectories(atlasFile.getParent());
+            ImageIO.write(copy, "png", atlasFile.toFile());
+            Files.write(indexFile, lines);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String[] describe(File file) {
+        return new String[]{file.getAbsolutePath(), String.valueOf(file.length()), String.valueOf(file.lastModified()), INDEX_VERSION};
+    }
+
+    /**
+     * 直接从图集里画对应区域，不为每个图标单独保留 BufferedImage。
+     */
+    private class AtlasIcon implements Icon {
+        private final int sx;
+        private final int sy;
+
+        AtlasIcon(int slot) {
+            this.sx = (slot % ATLAS_COLS) * ICON_SIZE;
+            this.sy = (slot / ATLAS_COLS) * ICON_SIZE;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            synchronized (ItemIconCache.this) {
+                g.drawImage(atlas, x, y, x + ICON_SIZE, y + ICON_SIZE, sx, sy, sx + ICON_SIZE, sy + ICON_SIZE, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() { return ICON_SIZE; }
+
+        @Override
+        public int getIconHeight() { return ICON_SIZE; }
+    }
+}
@@ -10,6 +10,7 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -22,6 +23,8 @@ public class MainFrame extends JFrame {
     private JLabel statusLabel;
     private JLabel pathLabel;
     private JLabel timeSinceLabel;
+    private JLabel rateLabel;
+    private ProgressChart progressChart;
 
     private JTable itemTable;
     private DefaultTableModel tableModel;
@@ -36,15 +39,24 @@ public class MainFrame extends JFrame {
     private TrackerManager.TrackerStats lastStats;
     private Timer uiRefreshTimer;
     private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final ItemIconCache iconCache = new ItemIconCache(Path.of("icon_cache"));
+
+    // 用 -Dtracker.renderStats=true 启动时，每秒输出表格绘制耗时和内存占用
+    private static final boolean RENDER_STATS = Boolean.getBoolean("tracker.renderStats");
+    private long paintCount = 0;
+    private long paintTotalNanos = 0;
+    private long paintMaxNanos = 0;
 
     public MainFrame(ItemDictionary dictionary) {
         this.dictionary = dictionary;
         setTitle("Minecraft 1.21 Item Tracker (Ultimate Edition)");
-        setSize(1000, 750);
+        setSize(1000, 880);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
         initUI();
+        iconCache.setOnIconLoaded(() -> itemTable.repaint());
+        iconCache.restore();
         startUiTimer();
     }
 
@@ -56,8 +68,14 @@ public class MainFrame extends JFrame {
         pathLabel.setForeground(Color.BLUE);
         JButton changeSaveBtn = new JButton("Change World...");
         changeSaveBtn.addActionListener(e -> openSaveSelector());
+        JButton iconSourceBtn = new JButton("Icons...");
+        iconSourceBtn.setToolTipText("Load item icons from a client jar or resource pack zip");
+        iconSourceBtn.addActionListener(e -> openIconSourceSelector());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        buttonPanel.add(iconSourceBtn);
+        buttonPanel.add(changeSaveBtn);
         topControlPanel.add(pathLabel, BorderLayout.CENTER);
-        topControlPanel.add(changeSaveBtn, BorderLayout.EAST);
+        topControlPanel.add(buttonPanel, BorderLayout.EAST);
 
         // === Filter Panel ===
         JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 5));
@@ -96,6 +114,20 @@ public class MainFrame extends JFrame {
         statusPanel.add(progressBar, BorderLayout.CENTER);
         statusPanel.add(timeSinceLabel, BorderLayout.SOUTH);
 
+        // === History Panel (速度 / 预计完成时间 / 折线图) ===
+        JPanel historyPanel = new JPanel(new BorderLayout(5, 5));
+        historyPanel.setBorder(BorderFactory.createTitledBorder("Progress History"));
+        rateLabel = new JLabel("Rate: -- items/h | ETA: --");
+        rateLabel.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JButton exportBtn = new JButton("Export CSV...");
+        exportBtn.addActionListener(e -> exportHistory());
+        JPanel rateRow = new JPanel(new BorderLayout());
+        rateRow.add(rateLabel, BorderLayout.CENTER);
+        rateRow.add(exportBtn, BorderLayout.EAST);
+        progressChart = new ProgressChart();
+        historyPanel.add(rateRow, BorderLayout.NORTH);
+        historyPanel.add(progressChart, BorderLayout.CENTER);
+
         // === Table Area ===
         String[] columns = {"Item ID", "Status"};
         tableModel = new DefaultTableModel(columns, 0) {
@@ -140,6 +172,20 @@ public class MainFrame extends JFrame {
                 }
                 return super.getToolTipText(e);
             }
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                if (!RENDER_STATS) {
+                    super.paintComponent(g);
+                    return;
+                }
+                long start = System.nanoTime();
+                super.paintComponent(g);
+                long elapsed = System.nanoTime() - start;
+                paintCount++;
+                paintTotalNanos += elapsed;
+                paintMaxNanos = Math.max(paintMaxNanos, elapsed);
+            }
         };
         itemTable.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         itemTable.setRowHeight(24);
@@ -153,6 +199,8 @@ public class MainFrame extends JFrame {
                 String status = (String) tableModel.getValueAt(modelRow, 1);
 
                 c.setFont(c.getFont().deriveFont(Font.BOLD));
+                // 只有正在绘制 (可见) 的行才会请求图标，未加载好时先不显示
+                setIcon(column == 0 ? iconCache.getIcon((String) value) : null);
 
                 if ("COLLECTED".equals(status)) {
                     c.setForeground(new Color(0, 150, 0)); // Green
@@ -201,6 +249,7 @@ public class MainFrame extends JFrame {
         northContainer.add(topControlPanel);
         northContainer.add(filterPanel);
         northContainer.add(statusPanel);
+        northContainer.add(historyPanel);
 
         add(northContainer, BorderLayout.NORTH);
         add(new JScrollPane(itemTable), BorderLayout.CENTER);
@@ -208,6 +257,7 @@ public class MainFrame extends JFrame {
 
     private void startUiTimer() {
         uiRefreshTimer = new Timer(1000, e -> {
+            if (RENDER_STATS) logRenderStats();
             if (lastStats != null && lastStats.lastSaveTime() > 0) {
                 long diff = System.currentTimeMillis() - lastStats.lastSaveTime();
                 long seconds = diff / 1000;
@@ -233,6 +283,18 @@ public class MainFrame extends JFrame {
         uiRefreshTimer.start();
     }
 
+    private void logRenderStats() {
+        if (paintCount > 0) {
+            Runtime rt = Runtime.getRuntime();
+            long usedMb = (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+            System.out.printf("[render] frames=%d avg=%.2fms max=%.2fms heap=%dMB icons=%d%n",
+                    paintCount, paintTotalNanos / 1e6 / paintCount, paintMaxNanos / 1e6, usedMb, iconCache.getCachedCount());
+        }
+        paintCount = 0;
+        paintTotalNanos = 0;
+        paintMaxNanos = 0;
+    }
+
     private void updateFilters() {
         String text = searchField.getText();
         boolean missingOnly = showMissingCheck.isSelected();
@@ -277,19 +339,60 @@ public class MainFrame extends JFrame {
         }
     }
 
+    private void openIconSourceSelector() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Client jar / Resource pack (*.jar, *.zip)", "jar", "zip"));
+        chooser.setCurrentDirectory(new File(System.getProperty("user.home"), "AppData/Roaming/.minecraft/versions"));
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            iconCache.setSource(chooser.getSelectedFile());
+            itemTable.repaint();
+        }
+    }
+
     public void updateView(TrackerManager.TrackerStats stats) {
-        this.lastStats = stats;
         SwingUtilities.invokeLater(() -> {
+            this.lastStats = stats;
             progressBar.setMaximum(stats.totalCount());
             progressBar.setValue(stats.collectedCount());
             double percent = (double) stats.collectedCount() / stats.totalCount() * 100;
             statusLabel.setText(String.format("Progress: %d / %d (%.2f%%)", stats.collectedCount(), stats.totalCount(), percent));
             updateTableData(stats);
+            updateHistory(stats.progress());
             // 每次数据更新时，重新应用一次过滤器，以防忽略状态改变后没有即时隐藏
             updateFilters();
         });
     }
 
+    private void updateHistory(ProgressHistory.Snapshot progress) {
+        progressChart.setData(progress);
+        double rate = progress.itemsPerHour();
+        long eta = progress.etaMillis();
+        String rateText = Double.isNaN(rate) ? "--" : String.format("%.1f", rate);
+        String etaText;
+        if (eta == 0) {
+            etaText = "Done!";
+        } else if (eta < 0) {
+            etaText = "--";
+        } else {
+            long minutes = eta / 60000;
+            etaText = (minutes / 60) + "h " + (minutes % 60) + "m";
+        }
+        rateLabel.setText("Rate: " + rateText + " items/h | ETA: " + etaText);
+    }
+
+    private void exportHistory() {
+        if (lastStats == null) return;
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("progress_history.csv"));
+        if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            try {
+                lastStats.progress().exportCsv(chooser.getSelectedFile().toPath());
+            } catch (java.io.IOException ex) {
+                JOptionPane.showMessageDialog(this, "Export failed: " + ex.getMessage());
+            }
+        }
+    }
+
     private void updateTableData(TrackerManager.TrackerStats stats) {
         // 保存当前滚动条位置和选中状态（简易版：可能会丢失选中）
         tableModel.setRowCount(0);
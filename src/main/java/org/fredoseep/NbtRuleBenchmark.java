@@ -0,0 +1,167 @@
+package org.fredoseep;
+
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.ListTag;
+import net.querz.nbt.tag.Tag;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * 对比规则匹配树和旧版“暴力递归所有 components”的扫描耗时和覆盖率。
+ * <p>
+ * 构造两个 1.21.5 格式的玩家背包，每个物品都带上附魔、Lore 等和容器无关的组件：
+ * <ul>
+ *   <li>bundles：36 个收纳袋层层嵌套 (两种实现都能找到全部物品，比较纯耗时)</li>
+ *   <li>shulkers：36 个潜影盒，每个装满 27 个收纳袋，收纳袋里再套潜影盒 (旧实现看不到 container 里的物品)</li>
+ * </ul>
+ * <p>
+ * 用法：java -cp MinecraftTracker.jar org.fredoseep.NbtRuleBenchmark [嵌套层数=2] [迭代次数=200]
+ */
+public class NbtRuleBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        NbtService service = new NbtService();
+        int[] counter = {0};
+        CompoundTag bundles = inventory(slot -> bundle(depth * 4, counter));
+        System.out.printf("[bundles]  %d item stacks, nesting depth %d%n", counter[0], depth * 4);
+        run(service, bundles, iterations);
+
+        counter[0] = 0;
+        CompoundTag shulkers = inventory(slot -> shulker(depth, counter));
+        System.out.printf("[shulkers] %d item stacks, nesting depth %d%n", counter[0], depth);
+        run(service, shulkers, iterations);
+    }
+
+    private static void run(NbtService service, CompoundTag root, int iterations) {
+        Set<String> ruleItems = new HashSet<>();
+        Set<String> bruteItems = new HashSet<>();
+        // 预热 JIT
+        for (int i = 0; i < Math.max(20, iterations / 10); i++) {
+            ruleItems.clear();
+            service.scanTag(root, ruleItems);
+            bruteItems.clear();
+            bruteForceScan(root, bruteItems);
+        }
+
+        long ruleNanos = time(iterations, () -> {
+            Set<String> found = new HashSet<>();
+            service.scanTag(root, found);
+        });
+        long bruteNanos = time(iterations, () -> {
+            Set<String> found = new HashSet<>();
+            bruteForceScan(root, found);
+        });
+
+        bruteItems.clear();
+        bruteForceScan(root, bruteItems);
+        System.out.printf("rules:       %8.3f ms/scan, %d distinct ids%n", ruleNanos / 1e6 / iterations, ruleItems.size());
+        System.out.printf("brute force: %8.3f ms/scan, %d distinct ids%n", bruteNanos / 1e6 / iterations, bruteItems.size());
+    }
+
+    private static CompoundTag inventory(IntFunction<CompoundTag> factory) {
+        CompoundTag root = new CompoundTag();
+        root.putInt("DataVersion", 4325);
+        ListTag<CompoundTag> inventory = new ListTag<>(CompoundTag.class);
+        for (int slot = 0; slot < 36; slot++) {
+            CompoundTag item = factory.apply(slot);
+            item.putByte("Slot", (byte) slot);
+            inventory.add(item);
+        }
+        root.put("Inventory", inventory);
+        return root;
+    }
+
+    private static long time(int iterations, Runnable scan) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) scan.run();
+        return System.nanoTime() - start;
+    }
+
+    private static CompoundTag shulker(int depth, int[] counter) {
+        CompoundTag shulker = item("minecraft:shulker_box", counter);
+        ListTag<CompoundTag> container = new ListTag<>(CompoundTag.class);
+        for (int slot = 0; slot < 27; slot++) {
+            CompoundTag entry = new CompoundTag();
+            entry.putInt("slot", slot);
+            entry.put("item", bundle(depth, counter));
+            container.add(entry);
+        }
+        shulker.getCompoundTag("components").put("minecraft:container", container);
+        return shulker;
+    }
+
+    private static CompoundTag bundle(int depth, int[] counter) {
+        CompoundTag bundle = item("minecraft:bundle", counter);
+        ListTag<CompoundTag> contents = new ListTag<>(CompoundTag.class);
+        for (int i = 0; i < 8; i++) {
+            contents.add(item("minecraft:bench_item_" + (counter[0] % 1000), counter));
+        }
+        // 更深一层：收纳袋里再放一个收纳袋，偶尔放一个潜影盒
+        if (depth > 1) {
+            contents.add(counter[0] % 27 == 0 ? shulker(depth - 1, counter) : bundle(depth - 1, counter));
+        }
+        bundle.getCompoundTag("components").put("minecraft:bundle_contents", contents);
+        return bundle;
+    }
+
+    private static CompoundTag item(String id, int[] counter) {
+        counter[0]++;
+        CompoundTag item = new CompoundTag();
+        item.putString("id", id);
+        item.putInt("count", 1);
+        CompoundTag components = new CompoundTag();
+        CompoundTag enchantments = new CompoundTag();
+        enchantments.putInt("minecraft:unbreaking", 3);
+        enchantments.putInt("minecraft:mending", 1);
+        components.put("minecraft:enchantments", enchantments);
+        // 1.21.5 起文本组件以 NBT 复合标签保存
+        ListTag<CompoundTag> lore = new ListTag<>(CompoundTag.class);
+        for (int line = 0; line < 3; line++) {
+            CompoundTag text = new CompoundTag();
+            text.putString("text", "benchmark line " + line);
+            text.putString("color", "gray");
+            lore.add(text);
+        }
+        components.put("minecraft:lore", lore);
+        components.putString("minecraft:custom_name", id);
+        item.put("components", components);
+        return item;
+    }
+
+    // --- 旧版实现 (暴力递归)，仅用于对比 ---
+
+    private static void bruteForceScan(CompoundTag root, Set<String> targetSet) {
+        if (root.containsKey("Inventory")) {
+            bruteForceList(root.getListTag("Inventory"), targetSet);
+        }
+    }
+
+    private static void bruteForceList(ListTag<?> list, Set<String> targetSet) {
+        if (list == null) return;
+        for (Tag<?> t : list) {
+            if (t instanceof CompoundTag itemTag) bruteForceItem(itemTag, targetSet);
+        }
+    }
+
+    private static void bruteForceItem(CompoundTag itemTag, Set<String> targetSet) {
+        String id = itemTag.getString("id");
+        if (id != null && !id.isEmpty()) targetSet.add(id);
+
+        if (itemTag.containsKey("components")) {
+            CompoundTag components = itemTag.getCompoundTag("components");
+            for (String key : components.keySet()) {
+                Tag<?> componentData = components.get(key);
+                if (componentData instanceof ListTag<?> innerList) {
+                    bruteForceList(innerList, targetSet);
+                } else if (componentData instanceof CompoundTag innerComp && innerComp.containsKey("Items")) {
+                    bruteForceList(innerComp.getListTag("Items"), targetSet);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.fredoseep;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 物品位置规则：描述“物品藏在 NBT 的哪里”，编译成一棵匹配树，扫描时只走匹配的分支。
+ * <p>
+ * 规则文件每行一条，# 开头为注释：
+ * <pre>
+ *   root Inventory[]                          # 从文件根开始：Inventory 列表里的每个元素都是物品
+ *   root equipment.*                          # equipment 下任意 key 的值都是物品
+ *   item components.minecraft:container[].item  # 从物品本身开始：容器组件里每个元素的 item 字段
+ * </pre>
+ * 路径用 "." 分隔；"name" 匹配同名 key，"*" 匹配任意 key，后缀 "[]" 表示遍历列表的每个元素。
+ * 路径的终点必须是一个物品 (带 id 的 CompoundTag)，找到的物品会再套用所有 item 规则，从而递归进入潜影盒/收纳袋。
+ */
+public final class NbtRules {
+    private static final String RESOURCE_DIR = "/nbt_rules/";
+
+    // 内置规则集：按 DataVersion 选择 "不大于当前版本的最高一档"
+    private static final int[] BUILT_IN_VERSIONS = {0, 3837, 4325};
+    private static final String[] BUILT_IN_FILES = {"legacy.rules", "1.20.5.rules", "1.21.5.rules"};
+
+    final Node root = new Node();
+    final Node item = new Node();
+    // item 规则几乎都在 components 下：扫描时直接取这个子节点，其余 key 留在 itemRest 里走通用循环
+    Node itemComponents;
+    Node itemRest;
+
+    private NbtRules() {}
+
+    /**
+     * 编译某个 DataVersion 对应的内置规则，并追加用户规则文件 (不存在则忽略)。
+     */
+    public static NbtRules forDataVersion(int dataVersion, Path userRules) {
+        String file = BUILT_IN_FILES[tierIndex(dataVersion)];
+        NbtRules rules = new NbtRules();
+        rules.addAll(readBuiltIn(file), file);
+        if (userRules != null && Files.exists(userRules)) {
+            try {
+                rules.addAll(Files.readAllLines(userRules), userRules.getFileName().toString());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        rules.root.freeze();
+        rules.item.freeze();
+        rules.splitItemComponents();
+        return rules;
+    }
+
+    private void splitItemComponents() {
+        Node components = item.children.get("components");
+        // 只有纯粹的中间节点才能拆出来；components 本身是物品或列表时仍交给通用逻辑
+        if (components == null || components.item || components.elements != null) {
+            itemRest = item;
+            return;
+        }
+        itemComponents = components;
+        itemRest = new Node();
+        itemRest.anyChild = item.anyChild;
+        itemRest.keys = new String[item.keys.length - 1];
+        itemRest.next = new Node[item.keys.length - 1];
+        for (int i = 0, j = 0; i < item.keys.length; i++) {
+            if (item.next[i] == components) continue;
+            itemRest.keys[j] = item.keys[i];
+            itemRest.next[j++] = item.next[i];
+        }
+    }
+
+    /**
+     * DataVersion 所属档位的最低版本号；同一档位的规则完全相同，可以共用一份编译结果。
+     */
+    public static int tierFor(int dataVersion) {
+        return BUILT_IN_VERSIONS[tierIndex(dataVersion)];
+    }
+
+    private static int tierIndex(int dataVersion) {
+        int pick = 0;
+        for (int i = 0; i < BUILT_IN_VERSIONS.length; i++) {
+            if (dataVersion >= BUILT_IN_VERSIONS[i]) pick = i;
+        }
+        return pick;
+    }
+
+    private static List<String> readBuiltIn(String name) {
+        try (InputStream in = NbtRules.class.getResourceAsStream(RESOURCE_DIR + name)) {
+            if (in == null) throw new IllegalStateException("Missing built-in rules: " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read built-in rules: " + name, e);
+        }
+    }
+
+    private void addAll(List<String> lines, String source) {
+        int lineNo = 0;
+        for (String raw : lines) {
+            lineNo++;
+            int hash = raw.indexOf('#');
+            String line = (hash >= 0 ? raw.substring(0, hash) : raw).trim();
+            if (line.isEmpty()) continue;
+
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2 || !(parts[0].equals("root") || parts[0].equals("item"))) {
+                System.err.println("Invalid NBT rule (" + source + ":" + lineNo + "): " + raw);
+                continue;
+            }
+            add(parts[0].equals("root") ? root : item, parts[1]);
+        }
+    }
+
+    private static void add(Node start, String path) {
+        Node node = start;
+        for (String segment : path.split("\\.")) {
+            boolean each = segment.endsWith("[]");
+            String key = each ? segment.substring(0, segment.length() - 2) : segment;
+            if (!key.isEmpty()) node = node.child(key);
+            if (each) node = node.elements();
+        }
+        node.item = true;
+    }
+
+    /**
+     * 匹配树节点。编译完成后只读，可以被多个解析线程同时使用。
+     */
+    static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        // freeze() 之后的紧凑形式，扫描时按下标遍历，不产生迭代器
+        String[] keys = new String[0];
+        Node[] next = new Node[0];
+        Node anyChild;
+        Node elements;
+        boolean item;
+        // 没有任何子规则：一定是路径终点 (物品)，扫描时不用再判断它是列表还是复合标签
+        boolean leaf;
+
+        private void freeze() {
+            keys = children.keySet().toArray(new String[0]);
+            next = new Node[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                next[i] = children.get(keys[i]);
+                next[i].freeze();
+            }
+            if (anyChild != null) anyChild.freeze();
+            if (elements != null) elements.freeze();
+            leaf = keys.length == 0 && anyChild == null && elements == null;
+        }
+
+        private Node child(String key) {
+            if (key.equals("*")) {
+                if (anyChild == null) anyChild = new Node();
+                return anyChild;
+            }
+            return children.computeIfAbsent(key, k -> new Node());
+        }
+
+        private Node elements() {
+            if (elements == null) elements = new Node();
+            return elements;
+        }
+    }
+}
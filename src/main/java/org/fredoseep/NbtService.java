@@ -7,103 +7,106 @@ import net.querz.nbt.tag.Tag;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NbtService {
 
-    public Set<String> scanFile(File file) {
-        Set<String> itemsFound = new HashSet<>();
-        if (!file.exists()) return itemsFound;
+    // 用户自定义规则 (例如 Mod 容器)，和 items.txt 放在同一目录，会追加到所有内置规则之后
+    private static final Path USER_RULES = Path.of("nbt_rules.txt");
+    // 防止异常存档 (或循环嵌套) 导致无限递归
+    private static final int MAX_ITEM_DEPTH = 32;
 
-        try {
-            Tag<?> rootTag = NBTUtil.read(file).getTag();
-            if (rootTag instanceof CompoundTag root) {
-                // 1. 尝试寻找 Inventory 列表 (Playerdata 标准结构)
-                if (root.containsKey("Inventory")) {
-                    scanListDeeply(root.getListTag("Inventory"), itemsFound);
-                }
+    // 每个版本档位只编译一次；多个解析线程共享
+    private final Map<Integer, NbtRules> rulesByTier = new ConcurrentHashMap<>();
 
-                // 2. 尝试寻找 Data.Player.Inventory (Level.dat 标准结构)
-                if (root.containsKey("Data")) {
-                    CompoundTag data = root.getCompoundTag("Data");
-                    if (data.containsKey("Player")) {
-                        CompoundTag player = data.getCompoundTag("Player");
-                        if (player.containsKey("Inventory")) {
-                            scanListDeeply(player.getListTag("Inventory"), itemsFound);
-                        }
-                    }
-                }
-            }
-        } catch (IOException e) {
-            // 文件可能正在被游戏写入，暂时忽略
+    /**
+     * 读取失败 (文件正在被游戏替换、已被删除或内容不完整) 时抛出异常，而不是返回空集合：
+     * 调用方要丢弃整轮扫描，否则这个文件里的物品会被误判为“消失”
+     */
+    public Set<String> scanFile(File file) throws IOException {
+        if (!file.exists()) throw new NoSuchFileException(file.getPath());
+
+        Set<String> itemsFound = new HashSet<>();
+        Tag<?> rootTag = NBTUtil.read(file).getTag();
+        if (rootTag instanceof CompoundTag root) {
+            scanTag(root, itemsFound);
         }
         return itemsFound;
     }
 
     /**
-     * 递归扫描列表中的每一项
+     * 按存档的 DataVersion 选择规则，单次遍历收集所有物品 ID
      */
-    private void scanListDeeply(ListTag<?> list, Set<String> targetSet) {
-        if (list == null) return;
-        for (Tag<?> t : list) {
-            if (t instanceof CompoundTag itemTag) {
-                scanItemTag(itemTag, targetSet);
-            }
+    public void scanTag(CompoundTag root, Set<String> targetSet) {
+        // Playerdata 的版本号在根上，level.dat 的在 Data 里
+        int dataVersion = root.getInt("DataVersion");
+        if (dataVersion == 0 && root.containsKey("Data")) {
+            dataVersion = root.getCompoundTag("Data").getInt("DataVersion");
         }
+        NbtRules rules = rulesByTier.computeIfAbsent(NbtRules.tierFor(dataVersion),
+                tier -> NbtRules.forDataVersion(tier, USER_RULES));
+        walk(root, rules.root, rules, targetSet, 0);
     }
 
     /**
-     * 核心逻辑：分析单个物品 NBT，并递归查找内部物品
+     * 沿着匹配树往下走：只访问规则里出现过的 key，不会遍历无关的组件
      */
-    private void scanItemTag(CompoundTag itemTag, Set<String> targetSet) {
-        if (itemTag == null) return;
-
-        // 1. 获取当前层级的物品 ID
-        String id = itemTag.getString("id");
-        if (id != null && !id.isEmpty()) {
-            targetSet.add(id);
+    private void walk(Tag<?> tag, NbtRules.Node node, NbtRules rules, Set<String> targetSet, int depth) {
+        if (node.leaf) {
+            if (node.item && tag instanceof CompoundTag itemTag) scanItemTag(itemTag, rules, targetSet, depth);
+            return;
+        }
+        if (tag instanceof CompoundTag compound) {
+            if (node.item) scanItemTag(compound, rules, targetSet, depth);
+            walkChildren(compound, node, rules, targetSet, depth);
+        } else if (node.elements != null && tag instanceof ListTag<?> list) {
+            walkElements(list, node.elements, rules, targetSet, depth);
         }
+    }
 
-        // 2. 深度递归：潜影盒 (Shulker Box)
-        // 结构: tag -> BlockEntityTag -> Items
-        if (itemTag.containsKey("tag")) {
-            CompoundTag tag = itemTag.getCompoundTag("tag");
-            if (tag.containsKey("BlockEntityTag")) {
-                CompoundTag blockEntity = tag.getCompoundTag("BlockEntityTag");
-                if (blockEntity.containsKey("Items")) {
-                    scanListDeeply(blockEntity.getListTag("Items"), targetSet);
-                }
+    private void walkChildren(CompoundTag compound, NbtRules.Node node, NbtRules rules, Set<String> targetSet, int depth) {
+        for (int i = 0; i < node.keys.length; i++) {
+            Tag<?> childTag = compound.get(node.keys[i]);
+            if (childTag != null) walk(childTag, node.next[i], rules, targetSet, depth);
+        }
+        if (node.anyChild != null) {
+            for (String key : compound.keySet()) {
+                walk(compound.get(key), node.anyChild, rules, targetSet, depth);
             }
+        }
+    }
 
-            // 兼容旧版 Bundle 或其他 Mod 物品的 tag 存储
-            if (tag.containsKey("Items")) {
-                scanListDeeply(tag.getListTag("Items"), targetSet);
+    private void walkElements(ListTag<?> list, NbtRules.Node element, NbtRules rules, Set<String> targetSet, int depth) {
+        // 最常见的情况 (Inventory[]、bundle_contents[])：元素就是物品，直接交给物品处理
+        if (element.leaf && element.item) {
+            for (Tag<?> tag : list) {
+                if (tag instanceof CompoundTag itemTag) scanItemTag(itemTag, rules, targetSet, depth);
             }
+            return;
         }
+        for (Tag<?> tag : list) {
+            walk(tag, element, rules, targetSet, depth);
+        }
+    }
 
-        // 3. 深度递归：1.21+ 收纳袋 (Bundle) 及其他组件
-        // 1.20.5+ 引入了 "components" 标签，收纳袋内容通常在 "minecraft:bundle_contents"
-        // 由于结构复杂，我们采用“暴力递归”策略：
-        // 检查 "components" 下所有的 ListTag，如果里面也是 CompoundTag，就尝试解析
-        if (itemTag.containsKey("components")) {
-            CompoundTag components = itemTag.getCompoundTag("components");
-            // 遍历组件里的所有 Key
-            for (String key : components.keySet()) {
-                Tag<?> componentData = components.get(key);
+    /**
+     * 核心逻辑：记录单个物品的 ID，再用 item 规则查找内部物品 (潜影盒、收纳袋等)
+     */
+    private void scanItemTag(CompoundTag itemTag, NbtRules rules, Set<String> targetSet, int depth) {
+        String id = itemTag.getString("id");
+        if (id != null && !id.isEmpty()) {
+            targetSet.add(id);
+        }
+        if (depth >= MAX_ITEM_DEPTH) return;
 
-                // 如果组件数据是一个列表 (例如 bundle_contents 是一个列表)
-                if (componentData instanceof ListTag<?> innerList) {
-                    scanListDeeply(innerList, targetSet);
-                }
-                // 如果组件数据是复合标签 (例如 container)
-                else if (componentData instanceof CompoundTag innerComp) {
-                    // 有些容器数据可能藏在下一层
-                    if (innerComp.containsKey("Items")) {
-                        scanListDeeply(innerComp.getListTag("Items"), targetSet);
-                    }
-                }
-            }
+        if (rules.itemComponents != null && itemTag.get("components") instanceof CompoundTag components) {
+            walkChildren(components, rules.itemComponents, rules, targetSet, depth + 1);
         }
+        walkChildren(itemTag, rules.itemRest, rules, targetSet, depth + 1);
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package org.fredoseep;
+
+import javax.swing.*;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 收集进度折线图：横轴时间，纵轴已收集 (绿) 和 已收集+已忽略 (橙) 数量。
+ */
+public class ProgressChart extends JPanel {
+    private static final int PADDING = 30;
+    private final SimpleDateFormat axisFormat = new SimpleDateFormat("MM-dd HH:mm");
+    private ProgressHistory.Snapshot data = ProgressHistory.Snapshot.EMPTY;
+
+    public ProgressChart() {
+        setPreferredSize(new Dimension(800, 140));
+        setBackground(Color.WHITE);
+    }
+
+    public void setData(ProgressHistory.Snapshot data) {
+        this.data = data;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        // 在副本上改笔刷和抗锯齿，不影响 Swing 传进来的 Graphics (之后还要用它画边框和子组件)
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            paintChart(g2);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private void paintChart(Graphics2D g2) {
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int w = getWidth() - PADDING * 2;
+        int h = getHeight() - PADDING * 2;
+        g2.setColor(Color.LIGHT_GRAY);
+        g2.drawRect(PADDING, PADDING, w, h);
+
+        if (data.size() < 2 || data.totalCount() <= 0) {
+            g2.setColor(Color.GRAY);
+            g2.drawString("Collecting history...", PADDING + 10, PADDING + h / 2);
+            return;
+        }
+
+        long[] times = data.times();
+        long t0 = times[0];
+        long span = Math.max(1, times[times.length - 1] - t0);
+
+        int[] xs = new int[times.length];
+        int[] collectedYs = new int[times.length];
+        int[] doneYs = new int[times.length];
+        for (int i = 0; i < times.length; i++) {
+            xs[i] = PADDING + (int) ((times[i] - t0) * w / span);
+            collectedYs[i] = PADDING + h - data.collected()[i] * h / data.totalCount();
+            doneYs[i] = PADDING + h - (data.collected()[i] + data.ignored()[i]) * h / data.totalCount();
+        }
+        g2.setColor(new Color(200, 160, 0));
+        g2.drawPolyline(xs, doneYs, xs.length);
+        g2.setColor(new Color(0, 150, 0));
+        g2.setStroke(new BasicStroke(2f));
+        g2.drawPolyline(xs, collectedYs, xs.length);
+
+        g2.setColor(Color.GRAY);
+        g2.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        g2.drawString(String.valueOf(data.totalCount()), 2, PADDING + 4);
+        g2.drawString("0", 2, PADDING + h);
+        g2.drawString(axisFormat.format(new Date(t0)), PADDING, PADDING + h + 15);
+        String end = axisFormat.format(new Date(times[times.length - 1]));
+        g2.drawString(end, PADDING + w - g2.getFontMetrics().stringWidth(end), PADDING + h + 15);
+    }
+}
@@ -0,0 +1,174 @@
+package org.fredoseep;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 进度时间序列：每次扫描记录一个 (时间, 已收集数, 已忽略数) 样本。
+ * <p>
+ * 分三层环形缓冲区 (秒 / 分钟 / 小时)，每层同一个时间桶只保留最后一个样本。
+ * 计数是累计值，所以取桶内最后一个值就是正确的降采样。
+ * 三层总共不到 3600 个样本，连续跑几周内存也不会增长。
+ * 样本由 TrackerManager 保存在存档目录的 tracker_progress_v1.txt 里，重启后继续累积。
+ * <p>
+ * 非线程安全：只由 TrackerManager 的 tracker-state 线程写入，其他线程通过 {@link #snapshot(int)} 读取。
+ */
+public class ProgressHistory {
+    private final Tier[] tiers = {
+            new Tier(1000L, 720),           // 秒级：约 1 小时 (每 5 秒一次扫描)
+            new Tier(60_000L, 1440),        // 分钟级：1 天
+            new Tier(3_600_000L, 24 * 7 * 8) // 小时级：8 周
+    };
+
+    public void record(long timestamp, int collected, int ignored) {
+        for (Tier tier : tiers) tier.record(timestamp, collected, ignored);
+    }
+
+    /**
+     * 序列化为文本行 (和 tracker_history_v2.txt 一样用 | 分隔)：层级|时间|已收集|已忽略，每层从旧到新。
+     */
+    public List<String> toLines() {
+        List<String> lines = new ArrayList<>();
+        for (int t = 0; t < tiers.length; t++) {
+            Tier tier = tiers[t];
+            for (int i = 0; i < tier.size; i++) {
+                lines.add(t + "|" + tier.timeAt(i) + "|" + tier.collectedAt(i) + "|" + tier.ignoredAt(i));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 从 {@link #toLines()} 的结果恢复；格式不对的行直接跳过。
+     */
+    public void load(List<String> lines) {
+        for (String line : lines) {
+            String[] parts = line.split("\\|");
+            if (parts.length != 4) continue;
+            try {
+                int t = Integer.parseInt(parts[0]);
+                if (t < 0 || t >= tiers.length) continue;
+                tiers[t].record(Long.parseLong(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+
+    /**
+     * 合并三层：越新的数据用越细的精度，返回按时间升序的不可变副本。
+     */
+    public Snapshot snapshot(int totalCount) {
+        List<long[]> points = new ArrayList<>();
+        long cutoff = Long.MAX_VALUE;
+        // 从细到粗，每一层只补充比上一层更早的部分
+        for (Tier tier : tiers) {
+            long oldest = tier.size > 0 ? tier.timeAt(0) : Long.MAX_VALUE;
+            List<long[]> older = new ArrayList<>();
+            for (int i = 0; i < tier.size; i++) {
+                long t = tier.timeAt(i);
+                if (t >= cutoff) break;
+                older.add(new long[]{t, tier.collectedAt(i), tier.ignoredAt(i)});
+            }
+            points.addAll(0, older);
+            cutoff = Math.min(cutoff, oldest);
+        }
+
+        long[] times = new long[points.size()];
+        int[] collected = new int[points.size()];
+        int[] ignored = new int[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            long[] p = points.get(i);
+            times[i] = p[0];
+            collected[i] = (int) p[1];
+            ignored[i] = (int) p[2];
+        }
+        return new Snapshot(times, collected, ignored, totalCount);
+    }
+
+    private static final class Tier {
+        private final long bucketMs;
+        private final long[] times;
+        private final int[] collected;
+        private final int[] ignored;
+        private int head = 0; // 最旧样本的位置
+        private int size = 0;
+
+        Tier(long bucketMs, int capacity) {
+            this.bucketMs = bucketMs;
+            this.times = new long[capacity];
+            this.collected = new int[capacity];
+            this.ignored = new int[capacity];
+        }
+
+        void record(long timestamp, int c, int i) {
+            int slot;
+            if (size > 0 && timeAt(size - 1) / bucketMs == timestamp / bucketMs) {
+                slot = index(size - 1); // 同一个桶：覆盖
+            } else if (size < times.length) {
+                slot = index(size++);
+            } else {
+                slot = head; // 满了：覆盖最旧的
+                head = (head + 1) % times.length;
+            }
+            times[slot] = timestamp;
+            collected[slot] = c;
+            ignored[slot] = i;
+        }
+
+        private int index(int i) { return (head + i) % times.length; }
+        long timeAt(int i) { return times[index(i)]; }
+        int collectedAt(int i) { return collected[index(i)]; }
+        int ignoredAt(int i) { return ignored[index(i)]; }
+    }
+
+    /**
+     * 只读快照 (数组不会再被修改，调用方也不应修改)。
+     */
+    public record Snapshot(long[] times, int[] collected, int[] ignored, int totalCount) {
+        private static final long RATE_WINDOW_MS = 3_600_000L;
+        private static final long MIN_RATE_WINDOW_MS = 60_000L;
+
+        public static final Snapshot EMPTY = new Snapshot(new long[0], new int[0], new int[0], 0);
+
+        public int size() { return times.length; }
+
+        /**
+         * 最近一小时 (不足一小时则用全部数据) 的收集速度，单位：个/小时。数据太少时返回 NaN。
+         */
+        public double itemsPerHour() {
+            int last = times.length - 1;
+            if (last < 1) return Double.NaN;
+            long windowStart = times[last] - RATE_WINDOW_MS;
+            int first = 0;
+            while (first < last && times[first] < windowStart) first++;
+            // 窗口内只剩一个点时，往前借一个点
+            if (first == last) first--;
+            long elapsed = times[last] - times[first];
+            if (elapsed < MIN_RATE_WINDOW_MS) return Double.NaN;
+            return (collected[last] - collected[first]) * 3_600_000.0 / elapsed;
+        }
+
+        /**
+         * 按当前速度估算剩余时间 (毫秒)，无法估算时返回 -1。
+         */
+        public long etaMillis() {
+            if (times.length == 0) return -1;
+            int remaining = totalCount - collected[times.length - 1] - ignored[times.length - 1];
+            if (remaining <= 0) return 0;
+            double rate = itemsPerHour();
+            if (Double.isNaN(rate) || rate <= 0) return -1;
+            return (long) (remaining / rate * 3_600_000.0);
+        }
+
+        public void exportCsv(Path file) throws IOException {
+            List<String> lines = new ArrayList<>(times.length + 1);
+            lines.add("timestamp,collected,ignored,missing");
+            for (int i = 0; i < times.length; i++) {
+                lines.add(times[i] + "," + collected[i] + "," + ignored[i] + "," + (totalCount - collected[i] - ignored[i]));
+            }
+            Files.write(file, lines);
+        }
+    }
+}
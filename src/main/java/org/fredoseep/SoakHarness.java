@@ -0,0 +1,386 @@
+package org.fredoseep;
+
+import net.querz.nbt.io.NBTUtil;
+import net.querz.nbt.tag.CompoundTag;
+import net.querz.nbt.tag.ListTag;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长时间压力测试：模拟游戏不断改写存档，无界面地驱动 TrackerManager，统计端到端延迟。
+ * <p>
+ * 模拟写入方和游戏一样“先写临时文件再 rename 覆盖”，背包内容随时间随机增减。
+ * 报告：写入次数和失败次数、拾取延迟 (物品写入存档 -> 出现在发布的快照里) 的 p50/p99/max、漏检次数、
+ * 误报“消失”次数，以及进程 CPU 和堆内存。
+ * <p>
+ * 用法：java -cp MinecraftTracker.jar org.fredoseep.SoakHarness --minutes=120 --players=4 --write-ms=1000
+ * 其他参数：--scan-ms=5000 --items=5000 --report-s=60 --verbose
+ */
+public class SoakHarness {
+    private final long durationMs;
+    private final int players;
+    private final long writeMs;
+    private final long scanMs;
+    private final int itemCount;
+    private final long reportMs;
+
+    private final PrintStream report = System.out;
+    private final Random random = new Random(42);
+    private Path world;
+    private List<Path> saveFiles;
+
+    // 写入方的真实状态 (只在 soak-writer 线程修改)
+    private final Map<Path, List<String>> inventories = new HashMap<>();
+    private final List<String> available = new ArrayList<>();
+    private final ArrayDeque<long[]> coolingDown = new ArrayDeque<>(); // {itemIndex, returnAt}
+
+    // 写入方和 tracker-state 线程共享
+    private final Map<String, Long> presentSince = new ConcurrentHashMap<>();
+    private final Map<String, Long> awaitingPickup = new ConcurrentHashMap<>();
+    private final Map<String, Long> removedAt = new ConcurrentHashMap<>();
+    // awaitingPickup 里的占位值：文件已开始替换，但可见时间还没盖上
+    private static final long PENDING_VISIBLE = Long.MAX_VALUE;
+    // Windows 上 tracker 正好打开着目标文件时 rename 会因共享冲突失败，重试几次再放弃
+    private static final int MOVE_ATTEMPTS = 5;
+    private static final long MOVE_RETRY_MS = 20;
+
+    // 以下统计只在 tracker-state 线程更新，读取时加锁
+    private long[] latencies = new long[1024];
+    private int latencyCount = 0;
+    private int missedEvents = 0;
+    private int unobservable = 0;
+    private int falseDisappears = 0;
+    private int publishes = 0;
+    private Set<String> lastInventory = Set.of();
+
+    private volatile long writes = 0;
+    private volatile long failedWrites = 0;
+    private long maxHeapUsed = 0;
+
+    // CPU 按进程累计 CPU 时间的差值计算 (只在主线程读写)：整个运行的起点和上一次报告的位置
+    private long cpuStartNanos;
+    private long wallStartNanos;
+    private long cpuLastNanos;
+    private long wallLastNanos;
+    private static final long MIN_CPU_WINDOW_NANOS = 1_000_000_000L;
+
+    public SoakHarness(Map<String, String> opts) {
+        this.durationMs = Long.parseLong(opts.getOrDefault("minutes", "60")) * 60_000L;
+        this.players = Integer.parseInt(opts.getOrDefault("players", "4"));
+        this.writeMs = Long.parseLong(opts.getOrDefault("write-ms", "1000"));
+        this.scanMs = Long.parseLong(opts.getOrDefault("scan-ms", "5000"));
+        this.itemCount = Integer.parseInt(opts.getOrDefault("items", "5000"));
+        this.reportMs = Long.parseLong(opts.getOrDefault("report-s", "60")) * 1000L;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq < 0) opts.put(arg.substring(2), "true");
+            else opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        SoakHarness harness = new SoakHarness(opts);
+        // TrackerManager 每个事件都会打印一行，跑几个小时会刷屏；默认静音，只保留报告
+        if (!opts.containsKey("verbose")) System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        harness.run();
+    }
+
+    public void run() throws Exception {
+        ScheduledExecutorService writer = null;
+        TrackerManager manager = null;
+        // 中途出错 (或被中断) 也要停掉线程、删掉临时世界，不在 /tmp 里留下几百 MB 存档
+        try {
+            setUpWorld();
+            ItemDictionary dictionary = new ItemDictionary(world.resolve("items.txt"));
+            manager = new TrackerManager(world.toString(), dictionary);
+            manager.setOnUpdateCallback(this::onPublish);
+
+            writer = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "soak-writer"));
+            writer.scheduleAtFixedRate(this::writeTick, 0, writeMs, TimeUnit.MILLISECONDS);
+            manager.startScanning(scanMs);
+
+            report.printf("[soak] world=%s players=%d write=%dms scan=%dms items=%d duration=%dmin%n",
+                    world, players, writeMs, scanMs, itemCount, durationMs / 60_000);
+            long start = System.currentTimeMillis();
+            cpuStartNanos = cpuLastNanos = processCpuNanos();
+            wallStartNanos = wallLastNanos = System.nanoTime();
+            long end = start + durationMs;
+            long nextReport = start + reportMs;
+            while (System.currentTimeMillis() < end) {
+                Thread.sleep(Math.max(1, Math.min(1000, end - System.currentTimeMillis())));
+                sampleHeap();
+                if (System.currentTimeMillis() >= nextReport) {
+                    printReport("progress", System.currentTimeMillis() - start, processCpuNanos(), System.nanoTime());
+                    nextReport += reportMs;
+                }
+            }
+
+            // 停止前读取最后一次 CPU：之后只剩收尾等待，进程是空闲的，不能算进平均值
+            long endCpu = processCpuNanos();
+            long endWall = System.nanoTime();
+            writer.shutdownNow();
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+            // 再等两个扫描周期，让最后写入的物品有机会被拾取
+            Thread.sleep(scanMs * 2 + 500);
+            manager.stop();
+            manager = null;
+            printReport("final", System.currentTimeMillis() - start, endCpu, endWall);
+        } finally {
+            if (writer != null) writer.shutdownNow();
+            if (manager != null) manager.stop();
+            if (world != null) deleteRecursively(world);
+        }
+    }
+
+    private void setUpWorld() throws IOException {
+        world = Files.createTempDirectory("tracker-soak");
+        Files.createDirectories(world.resolve("playerdata"));
+
+        // 写一个最小的物品库，格式和 ItemDictionary 期望的 JSON key 一致
+        StringBuilder json = new StringBuilder("{\n");
+        for (int i = 0; i < itemCount; i++) {
+            String id = "minecraft:soak_item_" + i;
+            available.add(id);
+            json.append("  \"").append(id).append("\": {}").append(i + 1 < itemCount ? ",\n" : "\n");
+        }
+        json.append("}\n");
+        Files.writeString(world.resolve("items.txt"), json);
+        Collections.shuffle(available, random);
+
+        saveFiles = new ArrayList<>();
+        saveFiles.add(world.resolve("level.dat"));
+        for (int i = 0; i < players; i++) {
+            saveFiles.add(world.resolve("playerdata").resolve(UUID.randomUUID() + ".dat"));
+        }
+        for (Path file : saveFiles) {
+            inventories.put(file, new ArrayList<>());
+            writeSave(file, List.of());
+        }
+    }
+
+    // [写入方] 随机挑一个存档，增减一些物品后“写临时文件 + rename”
+    private void writeTick() {
+        long now = System.currentTimeMillis();
+        while (!coolingDown.isEmpty() && coolingDown.peekFirst()[1] <= now) {
+            available.add("minecraft:soak_item_" + coolingDown.pollFirst()[0]);
+        }
+
+        Path file = saveFiles.get(random.nextInt(saveFiles.size()));
+        List<String> inventory = inventories.get(file);
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+
+        // 先移除再新增，同一次写入里不会出现“刚加进来就被移除”的物品
+        if (!inventory.isEmpty() && random.nextInt(3) == 0) {
+            removed.add(inventory.remove(random.nextInt(inventory.size())));
+        }
+        int adds = random.nextInt(3);
+        for (int i = 0; i < adds && !available.isEmpty() && inventory.size() < 36; i++) {
+            String id = available.remove(available.size() - 1);
+            inventory.add(id);
+            added.add(id);
+        }
+
+        // 写入失败时要把登记还原，先记下旧值
+        Map<String, Long> previousPresent = new HashMap<>();
+        Map<String, Long> previousRemoved = new HashMap<>();
+        // 移除在 rename 之前登记，避免把“正在消失”误算成误报
+        long removeTime = System.currentTimeMillis();
+        for (String id : removed) {
+            Long since = presentSince.remove(id);
+            if (since != null) previousPresent.put(id, since);
+            removedAt.put(id, removeTime);
+        }
+        // 新增也在 rename 之前占位：扫描可能在 rename 和登记之间发生，不能让这次拾取丢失
+        for (String id : added) {
+            Long removedTime = removedAt.remove(id);
+            if (removedTime != null) previousRemoved.put(id, removedTime);
+            awaitingPickup.put(id, PENDING_VISIBLE);
+        }
+        try {
+            writeSave(file, inventory);
+        } catch (IOException e) {
+            // 存档没有变：背包和登记都回到写入前的状态，这次写入只计入 failedWrites
+            failedWrites++;
+            report.println("[soak] write failed: " + e);
+            inventory.removeAll(added);
+            inventory.addAll(removed);
+            available.addAll(added);
+            for (String id : added) {
+                awaitingPickup.remove(id, PENDING_VISIBLE);
+                Long removedTime = previousRemoved.get(id);
+                if (removedTime != null) removedAt.put(id, removedTime);
+            }
+            for (String id : removed) {
+                removedAt.remove(id);
+                Long since = previousPresent.get(id);
+                if (since != null) presentSince.put(id, since);
+            }
+            return;
+        }
+        writes++;
+        // rename 之后才盖上可见时间，延迟从物品真正可见的那一刻算起；已被拾取的不再重新登记
+        long visibleAt = System.currentTimeMillis();
+        for (String id : added) {
+            presentSince.put(id, visibleAt);
+            awaitingPickup.replace(id, PENDING_VISIBLE, visibleAt);
+        }
+        // 被移除的物品冷却一段时间才能再次出现，保证 tracker 有机会看到它的消失
+        for (String id : removed) {
+            int index = Integer.parseInt(id.substring(id.lastIndexOf('_') + 1));
+            coolingDown.addLast(new long[]{index, visibleAt + scanMs * 3 + 15_000});
+        }
+    }
+
+    // 和游戏一样：在同目录创建 "<name>-随机数.dat" 临时文件，写完后原子替换
+    private void writeSave(Path file, List<String> inventory) throws IOException {
+        ListTag<CompoundTag> items = new ListTag<>(CompoundTag.class);
+        for (int slot = 0; slot < inventory.size(); slot++) {
+            CompoundTag item = new CompoundTag();
+            item.putByte("Slot", (byte) slot);
+            item.putString("id", inventory.get(slot));
+            item.putInt("count", 1);
+            items.add(item);
+        }
+
+        CompoundTag root = new CompoundTag();
+        if (file.getFileName().toString().equals("level.dat")) {
+            CompoundTag player = new CompoundTag();
+            player.put("Inventory", items);
+            CompoundTag data = new CompoundTag();
+            data.put("Player", player);
+            root.put("Data", data);
+        } else {
+            root.put("Inventory", items);
+        }
+
+        String name = file.getFileName().toString();
+        Path temp = Files.createTempFile(file.getParent(), name.substring(0, name.length() - 4) + "-", ".dat");
+        try {
+            NBTUtil.write(root, temp.toFile());
+            moveWithRetry(temp, file);
+        } catch (IOException e) {
+            // 临时文件也是 *.dat，留在 playerdata 里会被当成多出来的玩家一直扫描
+            try { Files.deleteIfExists(temp); } catch (IOException ignored) {}
+            throw e;
+        }
+    }
+
+    private static void moveWithRetry(Path temp, Path file) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return;
+            } catch (IOException e) {
+                if (attempt >= MOVE_ATTEMPTS) throw e;
+            }
+            try {
+                Thread.sleep(MOVE_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replacing " + file);
+            }
+        }
+    }
+
+    // [观察方] 运行在 tracker-state 线程，相当于 MainFrame 收到更新的时刻
+    private synchronized void onPublish(TrackerManager.TrackerStats stats) {
+        long now = System.currentTimeMillis();
+        publishes++;
+        Set<String> inventory = stats.inventorySet();
+
+        for (String id : inventory) {
+            Long since = awaitingPickup.remove(id);
+            // 还是占位值：rename 刚完成就被扫到，延迟按 0 计
+            if (since != null) addLatency(since == PENDING_VISIBLE ? 0 : Math.max(0, now - since));
+        }
+
+        // 误报：上一轮还在、这一轮不见了，但写入方确认它一直都在存档里
+        for (String id : lastInventory) {
+            if (!inventory.contains(id) && presentSince.containsKey(id)) {
+                falseDisappears++;
+            }
+        }
+        lastInventory = inventory;
+
+        // 漏检：物品在存档里待了至少一个扫描周期，却始终没出现在快照里。
+        // 待的时间不足一个周期的物品本来就可能扫不到，单独记为 unobservable
+        for (Map.Entry<String, Long> entry : awaitingPickup.entrySet()) {
+            String id = entry.getKey();
+            long visibleAt = entry.getValue();
+            Long removed = removedAt.get(id);
+            if (removed == null) {
+                if (now - visibleAt > scanMs * 3 && awaitingPickup.remove(id, visibleAt)) missedEvents++;
+            } else if (now - removed > scanMs * 2 && awaitingPickup.remove(id, visibleAt)) {
+                if (removed - visibleAt >= scanMs) missedEvents++;
+                else unobservable++;
+            }
+        }
+    }
+
+    private void addLatency(long ms) {
+        if (latencyCount == latencies.length) latencies = Arrays.copyOf(latencies, latencyCount * 2);
+        latencies[latencyCount++] = ms;
+    }
+
+    private void sampleHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        maxHeapUsed = Math.max(maxHeapUsed, memory.getHeapMemoryUsage().getUsed());
+    }
+
+    // cpu = 本次报告区间的平均值，avgCpu = 从开始到现在的平均值，都按全部核心折算 (和任务管理器一致)
+    private synchronized void printReport(String label, long elapsedMs, long cpuNanos, long wallNanos) {
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        double intervalCpu = cpuPercent(cpuNanos - cpuLastNanos, wallNanos - wallLastNanos);
+        double averageCpu = cpuPercent(cpuNanos - cpuStartNanos, wallNanos - wallStartNanos);
+        cpuLastNanos = cpuNanos;
+        wallLastNanos = wallNanos;
+        report.printf("[soak:%s] t=%ds writes=%d failedWrites=%d publishes=%d pickups=%d p50=%dms p99=%dms max=%dms " +
+                        "missed=%d unobservable=%d falseDisappear=%d cpu=%.1f%% avgCpu=%.1f%% heap=%dMB maxHeap=%dMB%n",
+                label, elapsedMs / 1000, writes, failedWrites, publishes, latencyCount,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), sorted.length == 0 ? 0 : sorted[sorted.length - 1],
+                missedEvents, unobservable, falseDisappears, intervalCpu, averageCpu,
+                heapUsed / (1024 * 1024), maxHeapUsed / (1024 * 1024));
+    }
+
+    // 不支持时返回 -1
+    private static long processCpuNanos() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return os.getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private double cpuPercent(long cpuDelta, long wallDelta) {
+        // 区间太短 (例如 final 紧跟在最后一次 progress 之后) 时数值没有意义
+        if (cpuStartNanos < 0 || cpuDelta < 0 || wallDelta < MIN_CPU_WINDOW_NANOS) return Double.NaN;
+        return cpuDelta * 100.0 / wallDelta / Runtime.getRuntime().availableProcessors();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static void deleteRecursively(Path root) {
+        try (var paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException ignored) {}
+    }
+}
@@ -6,76 +6,179 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
+/**
+ * 扫描流水线：
+ * discover (定时列出存档文件) -> read/decode (多线程解析 NBT) -> diff (单写线程对比并更新状态)
+ * -> persist (后台写硬盘) -> publish (不可变快照 + 回调)。
+ * <p>
+ * 所有追踪状态 (historyMap / ignoredItems / lastScanIds) 只由 "tracker-state" 线程读写，
+ * 其他线程只能通过 {@link #getSnapshot()} 拿到不可变快照，因此热路径上不需要任何锁。
+ */
 public class TrackerManager {
     private final Path saveDirectory;
     private final Path historyFile;
+    private final Path progressFile;
     private final ItemDictionary dictionary;
     private final NbtService nbtService;
     private ScheduledExecutorService scheduler;
 
-    // 数据存储
-    private final Map<String, ItemTimeline> historyMap = new ConcurrentHashMap<>();
+    // 各阶段之间用有界队列连接：队列满时提交方会被阻塞 (背压)，而不是无限堆积
+    private static final int DECODE_QUEUE_CAPACITY = 64;
+    private static final int STATE_QUEUE_CAPACITY = 16;
+    private final ExecutorService decodePool;
+    private final ThreadPoolExecutor stateWriter;
+    // 持久化只需要最新的一份，队列满时丢弃旧的快照
+    private final ExecutorService persistWriter;
+
+    // 数据存储 (仅 tracker-state 线程访问)
+    private final Map<String, ItemTimeline> historyMap = new HashMap<>();
     private final Set<String> ignoredItems = new HashSet<>();
 
     // 缓存上一次扫描到的所有物品ID，用于对比“消失”事件
-    private Set<String> lastScanIds = new HashSet<>();
-
-    private Consumer<TrackerStats> onUpdateCallback;
+    private Set<String> lastScanIds = Set.of();
     private long lastSaveFileTimestamp = 0;
 
+    // 忽略切换来自 EDT，不能阻塞：先放进无界队列，由 tracker-state 线程合并处理
+    private final Queue<String> pendingToggles = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean toggleDrainQueued = new AtomicBoolean(false);
+    private final Runnable toggleDrain = this::drainToggles;
+    private final ProgressHistory progressHistory = new ProgressHistory();
+    private long lastPersistTime = 0;
+
+    // 进度曲线每次扫描都会变化，但没必要每 5 秒写一次硬盘
+    private static final long PROGRESS_SAVE_INTERVAL_MS = 60_000;
+
+    // 对外发布的只读快照
+    private final AtomicReference<TrackerStats> snapshot = new AtomicReference<>();
+    private volatile Consumer<TrackerStats> onUpdateCallback;
+
     // 阈值：如果物品消失超过 15秒 再出现，视为“重新获得”，重置 FirstSeen
     private static final long GAP_THRESHOLD_MS = 15000;
+    private static final Pattern PLAYER_FILE = Pattern.compile("[0-9a-fA-F]{8}(-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}\\.dat");
 
     public TrackerManager(String savePath, ItemDictionary dictionary) {
         this.saveDirectory = Path.of(savePath);
         this.historyFile = this.saveDirectory.resolve("tracker_history_v2.txt");
+        this.progressFile = this.saveDirectory.resolve("tracker_progress_v1.txt");
         this.dictionary = dictionary;
         this.nbtService = new NbtService();
 
+        int decodeThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        this.decodePool = newStage("tracker-decode", decodeThreads, DECODE_QUEUE_CAPACITY, TrackerManager::blockUntilQueued);
+        this.stateWriter = newStage("tracker-state", 1, STATE_QUEUE_CAPACITY, (r, executor) -> {
+            // 忽略切换由 EDT 提交，不能阻塞；切换本身已经保存在 pendingToggles 里，拒绝也不会丢
+            if (r == toggleDrain) throw new RejectedExecutionException("State queue full");
+            blockUntilQueued(r, executor);
+        });
+        this.persistWriter = newStage("tracker-persist", 1, 1, new ThreadPoolExecutor.DiscardOldestPolicy());
+
+        // 构造阶段还没有其他线程，直接加载即可；线程池的启动保证了之后的可见性
         loadGlobalIgnoredList();
         loadHistory();
+        loadProgress();
+        snapshot.set(buildStats());
     }
 
     public void startScanning() {
-        scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(this::performScan, 0, 5, TimeUnit.SECONDS);
+        startScanning(5000);
+    }
+
+    public void startScanning(long periodMs) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> newDaemon(r, "tracker-discover"));
+        scheduler.scheduleAtFixedRate(this::performScan, 0, periodMs, TimeUnit.MILLISECONDS);
     }
 
     public void stop() {
+        // 先断开回调：停止后队列里剩下的任务不能再把旧存档的数据推给界面
+        onUpdateCallback = null;
         if (scheduler != null && !scheduler.isShutdown()) scheduler.shutdownNow();
+        decodePool.shutdownNow();
+        stateWriter.shutdown();
+        persistWriter.shutdown();
+    }
+
+    /**
+     * 最近一次发布的不可变快照，任何线程都可以调用。
+     */
+    public TrackerStats getSnapshot() {
+        return snapshot.get();
     }
 
     public void toggleIgnore(String itemId) {
-        if (ignoredItems.contains(itemId)) {
-            ignoredItems.remove(itemId);
-        } else {
-            ignoredItems.add(itemId);
+        pendingToggles.add(itemId);
+        if (toggleDrainQueued.compareAndSet(false, true)) {
+            try {
+                stateWriter.execute(toggleDrain);
+            } catch (RejectedExecutionException e) {
+                // 状态队列已满 (排在前面的扫描任务执行时会顺带处理这些切换) 或管理器已停止
+                toggleDrainQueued.set(false);
+            }
+        }
+    }
+
+    // 运行在 tracker-state 线程
+    private void drainToggles() {
+        toggleDrainQueued.set(false);
+        if (applyPendingToggles()) publish();
+    }
+
+    // 运行在 tracker-state 线程，返回是否有改动
+    private boolean applyPendingToggles() {
+        boolean changed = false;
+        String itemId;
+        while ((itemId = pendingToggles.poll()) != null) {
+            if (!ignoredItems.remove(itemId)) {
+                ignoredItems.add(itemId);
+            }
+            changed = true;
         }
-        saveGlobalIgnoredList();
-        broadcastStats();
+        if (changed) saveGlobalIgnoredList();
+        return changed;
     }
 
+    // [discover + read/decode] 运行在 tracker-discover 线程
     private void performScan() {
         if (!saveDirectory.toFile().exists()) return;
 
-        Set<String> currentInventoryItems = new HashSet<>();
+        List<File> files = discoverFiles(saveDirectory);
         long maxModTime = 0;
+        List<Future<Set<String>>> decoded = new ArrayList<>(files.size());
+        try {
+            for (File f : files) {
+                maxModTime = Math.max(maxModTime, f.lastModified());
+                decoded.add(decodePool.submit(() -> nbtService.scanFile(f)));
+            }
 
-        // 1. 扫描文件 (Level.dat + Playerdata)
-        // ... (此处省略重复的文件扫描代码，与之前一致，只负责填充 currentInventoryItems) ...
-        // 为了代码简洁，我把这部分逻辑简写，请务必保留之前扫描 level.dat 和 playerdata 的完整代码
-        currentInventoryItems.addAll(scanAllFiles(saveDirectory));
-        maxModTime = System.currentTimeMillis(); // 简化写法，实际请保留之前的 lastModified 逻辑
+            Set<String> currentInventoryItems = new HashSet<>();
+            for (Future<Set<String>> future : decoded) {
+                currentInventoryItems.addAll(future.get());
+            }
+
+            long modTime = maxModTime;
+            Set<String> scanned = Collections.unmodifiableSet(currentInventoryItems);
+            submitState(() -> applyScan(scanned, modTime));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            decoded.forEach(f -> f.cancel(true));
+        } catch (ExecutionException e) {
+            // 某个文件读取失败 (通常是正在被游戏替换)：丢弃本轮结果，避免把缺失的物品误判为“消失”，下一轮重新读取
+            System.out.println(">>> Skipped scan round: " + e.getCause());
+        } catch (RejectedExecutionException ignored) {
+            // 管理器已停止
+        }
+    }
 
-        // 2. 核心逻辑：判断是否需要“写硬盘”
+    // [diff] 运行在 tracker-state 线程
+    private void applyScan(Set<String> currentInventoryItems, long maxModTime) {
         long now = System.currentTimeMillis();
         boolean needSaveToDisk = false;
+        applyPendingToggles();
 
         // --- 检查当前物品 (处理新增 和 回归) ---
         for (String id : currentInventoryItems) {
@@ -87,19 +190,15 @@ public class TrackerManager {
                     historyMap.put(id, new ItemTimeline(now, now));
                     needSaveToDisk = true;
                     System.out.println(">>> New item found: " + id);
+                } else if (now - timeline.lastSeen > GAP_THRESHOLD_MS) {
+                    // [事件B] 消失很久后回归 -> 重置首次时间 -> 必须保存
+                    historyMap.put(id, new ItemTimeline(now, now));
+                    needSaveToDisk = true;
+                    System.out.println(">>> Item returned: " + id);
                 } else {
-                    // 物品已存在：先更新内存里的 LastSeen (不耗资源)
+                    // 物品已存在：只更新内存里的 LastSeen (不耗资源)
                     // 只有内存更新了，等会儿它消失时，写入硬盘的时间才是热乎的
-                    long oldLastSeen = timeline.lastSeen;
-                    timeline.lastSeen = now;
-
-                    // 检查是否“断档回归”
-                    if (now - oldLastSeen > GAP_THRESHOLD_MS) {
-                        // [事件B] 消失很久后回归 -> 重置首次时间 -> 必须保存
-                        timeline.firstSeen = now;
-                        needSaveToDisk = true;
-                        System.out.println(">>> Item returned: " + id);
-                    }
+                    historyMap.put(id, new ItemTimeline(timeline.firstSeen, now));
                 }
             }
         }
@@ -115,46 +214,73 @@ public class TrackerManager {
             }
         }
 
-        // 3. 只有在触发关键事件时，才操作硬盘
-        if (needSaveToDisk) {
+        progressHistory.record(now, historyMap.size(), countIgnoredMissing());
+
+        // 只有在触发关键事件 (或进度曲线很久没保存) 时，才操作硬盘
+        if (needSaveToDisk || now - lastPersistTime >= PROGRESS_SAVE_INTERVAL_MS) {
             saveHistory();
         }
 
-        // 4. 更新缓存，准备下一次对比
-        this.lastScanIds = new HashSet<>(currentInventoryItems);
+        // 更新缓存，准备下一次对比
+        this.lastScanIds = currentInventoryItems;
         this.lastSaveFileTimestamp = maxModTime;
-        broadcastStats();
+        publish();
     }
 
-    // 辅助方法：把之前的扫描逻辑封装一下，方便上面调用
-    private Set<String> scanAllFiles(Path dir) {
-        Set<String> found = new HashSet<>();
+    private List<File> discoverFiles(Path dir) {
+        List<File> found = new ArrayList<>();
         File levelDat = dir.resolve("level.dat").toFile();
-        if (levelDat.exists()) found.addAll(nbtService.scanFile(levelDat));
+        if (levelDat.exists()) found.add(levelDat);
 
         File playerDir = dir.resolve("playerdata").toFile();
         if (playerDir.exists()) {
-            File[] files = playerDir.listFiles((d, n) -> n.endsWith(".dat"));
-            if (files != null) for (File f : files) found.addAll(nbtService.scanFile(f));
+            // 只要 "<uuid>.dat"：游戏保存时会先写 "<uuid>-随机数.dat" 再 rename，
+            // 扫到这种临时文件时它多半已经不存在了，读取失败会让整轮扫描作废
+            File[] files = playerDir.listFiles((d, n) -> PLAYER_FILE.matcher(n).matches());
+            if (files != null) found.addAll(Arrays.asList(files));
         }
         return found;
     }
 
-    private void broadcastStats() {
-        if (onUpdateCallback != null) {
-            TrackerStats stats = new TrackerStats(
-                    historyMap.size(),
-                    dictionary.getTotalCount(),
-                    new HashMap<>(historyMap),
-                    dictionary.getAllItems(),
-                    new HashSet<>(ignoredItems),
-                    lastSaveFileTimestamp
-            );
-            onUpdateCallback.accept(stats);
+    // [publish] 运行在 tracker-state 线程
+    private void publish() {
+        TrackerStats stats = buildStats();
+        snapshot.set(stats);
+        Consumer<TrackerStats> callback = onUpdateCallback;
+        if (callback != null) callback.accept(stats);
+    }
+
+    // 已忽略且尚未收集的物品数 (已收集的物品即使被忽略也算作收集)
+    private int countIgnoredMissing() {
+        int count = 0;
+        for (String id : ignoredItems) {
+            if (!historyMap.containsKey(id)) count++;
         }
+        return count;
     }
 
-    // --- 读写逻辑 (保持不变) ---
+    private TrackerStats buildStats() {
+        return new TrackerStats(
+                historyMap.size(),
+                dictionary.getTotalCount(),
+                Map.copyOf(historyMap),
+                dictionary.getAllItems(),
+                Set.copyOf(ignoredItems),
+                lastSaveFileTimestamp,
+                lastScanIds,
+                progressHistory.snapshot(dictionary.getTotalCount())
+        );
+    }
+
+    private void submitState(Runnable task) {
+        try {
+            stateWriter.execute(task);
+        } catch (RejectedExecutionException ignored) {
+            // 管理器已停止
+        }
+    }
+
+    // --- 读写逻辑 ---
     private void loadHistory() {
         if (Files.exists(historyFile)) {
             try {
@@ -169,15 +295,34 @@ public class TrackerManager {
         }
     }
 
+    private void loadProgress() {
+        if (Files.exists(progressFile)) {
+            try {
+                progressHistory.load(Files.readAllLines(progressFile));
+            } catch (Exception e) { e.printStackTrace(); }
+        }
+    }
+
+    // [persist] 在 tracker-state 线程生成内容，交给 tracker-persist 线程落盘
+    // 物品记录和进度曲线总是一起写：持久化队列只保留最新的一份，分开提交可能互相覆盖
     private void saveHistory() {
+        lastPersistTime = System.currentTimeMillis();
+        List<String> lines = new ArrayList<>(historyMap.size());
+        for (Map.Entry<String, ItemTimeline> entry : historyMap.entrySet()) {
+            lines.add(entry.getKey() + "|" + entry.getValue().firstSeen + "|" + entry.getValue().lastSeen);
+        }
+        List<String> progressLines = progressHistory.toLines();
         try {
-            System.out.println(">>> Saving history to disk..."); // 调试用，让你看到它很少触发
-            List<String> lines = new ArrayList<>();
-            for (Map.Entry<String, ItemTimeline> entry : historyMap.entrySet()) {
-                lines.add(entry.getKey() + "|" + entry.getValue().firstSeen + "|" + entry.getValue().lastSeen);
-            }
-            Files.write(historyFile, lines, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (IOException e) { e.printStackTrace(); }
+            persistWriter.execute(() -> {
+                try {
+                    System.out.println(">>> Saving history to disk..."); // 调试用，让你看到它很少触发
+                    Files.write(historyFile, lines, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                    Files.write(progressFile, progressLines, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                } catch (IOException e) { e.printStackTrace(); }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // 管理器已停止
+        }
     }
 
     // Ignored List Logic... (保持不变)
@@ -186,9 +331,35 @@ public class TrackerManager {
 
     public void setOnUpdateCallback(Consumer<TrackerStats> callback) { this.onUpdateCallback = callback; }
 
-    public static class ItemTimeline {
-        public long firstSeen;
-        public long lastSeen;
+    // --- 线程池工具 ---
+    private static ThreadPoolExecutor newStage(String name, int threads, int capacity, RejectedExecutionHandler onFull) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity), r -> newDaemon(r, name), onFull);
+    }
+
+    private static Thread newDaemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // 队列满时阻塞提交方，直到下游腾出空间
+    private static void blockUntilQueued(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) throw new RejectedExecutionException("Stage stopped");
+        try {
+            executor.getQueue().put(r);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    /**
+     * 不可变：更新时间戳时替换整个对象，快照里的实例永远不会被修改。
+     */
+    public static final class ItemTimeline {
+        public final long firstSeen;
+        public final long lastSeen;
         public ItemTimeline(long f, long l) { this.firstSeen = f; this.lastSeen = l; }
     }
 
@@ -196,6 +367,8 @@ public class TrackerManager {
             int collectedCount, int totalCount,
             Map<String, ItemTimeline> collectedMap,
             Set<String> allItemsSet, Set<String> ignoredSet,
-            long lastSaveTime
+            long lastSaveTime,
+            Set<String> inventorySet,
+            ProgressHistory.Snapshot progress
     ) {}
 }
\ No newline at end of file